@@ -4,18 +4,47 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Clip;
+import javax.sound.sampled.SourceDataLine;
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.prefs.Preferences;
 
 public class FloatySquirrel extends JFrame {
@@ -24,10 +53,13 @@ public class FloatySquirrel extends JFrame {
     private static final int GROUND_LEVEL = HEIGHT - 100;
     private CardLayout cardLayout;
     private JPanel cardPanel;
-    private int highScore = 0;
+    private volatile int highScore = 0;
     private Preferences prefs;
-    private boolean soundEnabled = true;
+    private volatile boolean soundEnabled = true;
+    private volatile boolean musicEnabled = true;
+    private volatile boolean telemetryEnabled = true;
     private Clip scoreSound;
+    private Soundtrack soundtrack = new Soundtrack();
 
     // Modern color scheme
     public static final Color ACCENT_COLOR = new Color(165, 107, 79);   // Warm brown
@@ -40,6 +72,8 @@ public class FloatySquirrel extends JFrame {
         prefs = Preferences.userNodeForPackage(FloatySquirrel.class);
         highScore = prefs.getInt("highScore", 0);
         soundEnabled = prefs.getBoolean("soundEnabled", true);
+        musicEnabled = prefs.getBoolean("musicEnabled", true);
+        telemetryEnabled = prefs.getBoolean("telemetryEnabled", true);
 
         setTitle("Floaty Squirrel");
         setSize(WIDTH, HEIGHT);
@@ -113,6 +147,35 @@ public class FloatySquirrel extends JFrame {
         return soundEnabled;
     }
 
+    public void setMusicPlaying(boolean playing) {
+        soundtrack.setPlaying(playing && musicEnabled);
+    }
+
+    public void setMusicIntensity(int score) {
+        soundtrack.setIntensity(score);
+    }
+
+    public void setMusicEnabled(boolean enabled) {
+        this.musicEnabled = enabled;
+        prefs.putBoolean("musicEnabled", enabled);
+        if (!enabled) {
+            soundtrack.stop();
+        }
+    }
+
+    public boolean isMusicEnabled() {
+        return musicEnabled;
+    }
+
+    public void setTelemetryEnabled(boolean enabled) {
+        this.telemetryEnabled = enabled;
+        prefs.putBoolean("telemetryEnabled", enabled);
+    }
+
+    public boolean isTelemetryEnabled() {
+        return telemetryEnabled;
+    }
+
     public void setResizable(boolean resizable) {
         super.setResizable(resizable);
         prefs.putBoolean("windowResizable", resizable);
@@ -137,62 +200,170 @@ public class FloatySquirrel extends JFrame {
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--alloc-budget")) {
+            // Drives the game loop offscreen and exits non-zero if a phase is over budget
+            System.setProperty("java.awt.headless", "true");
+            int frames = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+            System.exit(new AllocationBudget(frames).run(System.out) ? 0 : 1);
+        } else if (args.length > 0 && args[0].equals("--soak")) {
+            // Lets the autopilot play headless for the given number of seconds
+            System.setProperty("java.awt.headless", "true");
+            Autopilot.soak(args.length > 1 ? Long.parseLong(args[1]) : 60, System.out);
+            System.exit(0);
+        } else if (args.length > 0 && args[0].equals("--analyze")) {
+            // Summarizes telemetry logs: --analyze [log files or directories]
+            List<File> inputs = new ArrayList<>();
+            for (int i = 1; i < args.length; i++) {
+                inputs.add(new File(args[i]));
+            }
+            if (inputs.isEmpty()) {
+                inputs.add(TelemetryLog.getDirectory());
+            }
+            try {
+                TelemetryAnalyzer.analyze(inputs, System.out);
+                System.exit(0);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        } else if (args.length > 0 && args[0].equals("--export")) {
+            // Renders a recorded run offscreen: --export <frames-dir | video.rgb> [replay] [threads]
+            System.setProperty("java.awt.headless", "true");
+            if (args.length < 2) {
+                System.err.println("Usage: java FloatySquirrel --export <frames-dir | video.rgb> [replay] [threads]");
+                System.exit(2);
+            }
+            try {
+                File replayFile = args.length > 2 ? new File(args[2]) : Replay.getLastRunFile();
+                int threads = args.length > 3 ? Integer.parseInt(args[3])
+                        : Runtime.getRuntime().availableProcessors();
+                new ReplayExporter(Replay.load(replayFile), new File(args[1]), threads).export(System.out);
+                System.exit(0);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }
         SwingUtilities.invokeLater(() -> new FloatySquirrel());
     }
 }
 class Background {
+    // Forest-themed sky and ground gradients
+    private static final GradientPaint SKY_GRADIENT = new GradientPaint(
+            0, 0, new Color(158, 203, 227),  // Light blue
+            0, 400, new Color(209, 231, 240)  // Pale blue
+    );
+    private static final GradientPaint GROUND_GRADIENT = new GradientPaint(
+            0, 500, new Color(76, 115, 61),    // Dark forest green
+            0, 600, new Color(52, 78, 42)      // Deeper forest green
+    );
+    private static final Color GRASS_COLOR = new Color(60, 91, 48);
+
+    // Sky and ground never change, so their gradients are rendered once and blitted each frame.
+    // Held in its own class so the JVM's class initialization publishes it safely to every
+    // thread that draws, such as the exporter's workers.
+    private static final class Scenery {
+        static final BufferedImage IMAGE = render();
+
+        private static BufferedImage render() {
+            BufferedImage image = new BufferedImage(1200, 600, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setPaint(SKY_GRADIENT);
+            g2d.fillRect(0, 0, 1200, 600);
+            g2d.setPaint(GROUND_GRADIENT);
+            g2d.fillRect(0, 500, 1200, 100);
+            g2d.dispose();
+            return image;
+        }
+    }
+
     private ArrayList<Cloud> clouds;
     private Random random;
+    private Random grassRandom = new Random();
+    private long frame;
 
     public Background() {
+        this(new Random());
+    }
+
+    /** Creates a background whose clouds always drift the same way, for replays. */
+    public Background(long seed) {
+        this(new Random(seed));
+    }
+
+    private Background(Random random) {
         clouds = new ArrayList<>();
-        random = new Random();
+        this.random = random;
+        placeClouds();
+    }
+
+    /** Restarts the sky from a seed, so a run's scenery can be replayed along with it. */
+    public void reset(long seed) {
+        random.setSeed(seed);
+        frame = 0;
+        placeClouds();
+    }
+
+    private void placeClouds() {
         for (int i = 0; i < 8; i++) {  // More clouds for wider screen
-            addCloud(random.nextInt(1200));
+            int x = random.nextInt(1200);
+            int y = random.nextInt(200) + 50;
+            int width = nextCloudWidth();
+            if (i < clouds.size()) {
+                clouds.get(i).respawn(x, y, width);
+            } else {
+                clouds.add(new Cloud(x, y, width));
+            }
+        }
+    }
+
+    /** Copies the clouds and grass frame of another background, reusing this one's clouds. */
+    public void copyFrom(Background other) {
+        frame = other.frame;
+        for (int i = 0; i < other.clouds.size(); i++) {
+            Cloud cloud = other.clouds.get(i);
+            if (i < clouds.size()) {
+                clouds.get(i).respawn(cloud.getX(), cloud.getY(), cloud.getWidth());
+            } else {
+                clouds.add(new Cloud(cloud.getX(), cloud.getY(), cloud.getWidth()));
+            }
+        }
+        while (clouds.size() > other.clouds.size()) {
+            clouds.remove(clouds.size() - 1);
         }
     }
 
-    private void addCloud(int x) {
-        clouds.add(new Cloud(x, random.nextInt(200) + 50));
+    private int nextCloudWidth() {
+        return 60 + random.nextInt(40);
     }
 
     public void update() {
+        frame++;
         for (int i = clouds.size() - 1; i >= 0; i--) {
             Cloud cloud = clouds.get(i);
             cloud.update();
             if (cloud.getX() + cloud.getWidth() < 0) {
+                // Recycle the cloud at the right edge
                 clouds.remove(i);
-                addCloud(1200);  // Add new cloud at right edge
+                cloud.respawn(1200, random.nextInt(200) + 50, nextCloudWidth());
+                clouds.add(cloud);
             }
         }
     }
 
     public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        // Forest-themed sky gradient
-        GradientPaint skyGradient = new GradientPaint(
-                0, 0, new Color(158, 203, 227),  // Light blue
-                0, 400, new Color(209, 231, 240)  // Pale blue
-        );
-        g2d.setPaint(skyGradient);
-        g2d.fillRect(0, 0, 1200, 600);
-
-        for (Cloud cloud : clouds) {
-            cloud.draw(g);
-        }
-
-        // Forest-themed ground gradient
-        GradientPaint groundGradient = new GradientPaint(
-                0, 500, new Color(76, 115, 61),    // Dark forest green
-                0, 600, new Color(52, 78, 42)      // Deeper forest green
-        );
-        g2d.setPaint(groundGradient);
-        g2d.fillRect(0, 500, 1200, 100);
-
-        // Grass details
-        g.setColor(new Color(60, 91, 48));
+        // Clouds stay above y = 500, so drawing the ground before them looks the same
+        g.drawImage(Scenery.IMAGE, 0, 0, null);
+
+        for (int i = 0; i < clouds.size(); i++) {
+            clouds.get(i).draw(g);
+        }
+
+        // Grass details, reseeded from the frame number so a replayed frame sways the same way
+        grassRandom.setSeed(frame * 0x9E3779B97F4A7C15L);
+        g.setColor(GRASS_COLOR);
         for (int x = 0; x < 1200; x += 8) {  // More dense grass
-            int grassHeight = random.nextInt(12) + 6;
+            int grassHeight = grassRandom.nextInt(12) + 6;
             g.drawLine(x, 500, x, 500 - grassHeight);
         }
     }
@@ -202,11 +373,31 @@ class Cloud {
     private int x, y;
     private int width;
     private static final int SPEED = 1;
+    private static final Color CLOUD_COLOR = new Color(255, 255, 255, 220);  // Slightly transparent clouds
+    private static final int MIN_WIDTH = 60;
+    private static final int MAX_WIDTH = 99;
+
+    // One prerendered sprite per cloud width, since filling translucent ovals allocates every frame.
+    // All are drawn up front so any thread can use them without synchronizing.
+    private static final BufferedImage[] SPRITES = new BufferedImage[MAX_WIDTH - MIN_WIDTH + 1];
+    static {
+        for (int width = MIN_WIDTH; width <= MAX_WIDTH; width++) {
+            BufferedImage sprite = new BufferedImage(width, 40, BufferedImage.TYPE_INT_ARGB);
+            Graphics spriteGraphics = sprite.getGraphics();
+            drawShape(spriteGraphics, 0, 10, width);
+            spriteGraphics.dispose();
+            SPRITES[width - MIN_WIDTH] = sprite;
+        }
+    }
+
+    public Cloud(int x, int y, int width) {
+        respawn(x, y, width);
+    }
 
-    public Cloud(int x, int y) {
+    public void respawn(int x, int y, int width) {
         this.x = x;
         this.y = y;
-        this.width = 60 + new Random().nextInt(40);
+        this.width = width;
     }
 
     public void update() {
@@ -214,24 +405,41 @@ class Cloud {
     }
 
     public void draw(Graphics g) {
-        g.setColor(new Color(255, 255, 255, 220));  // Slightly transparent clouds
+        if (width < MIN_WIDTH || width > MAX_WIDTH) {
+            drawShape(g, x, y, width);
+            return;
+        }
+        g.drawImage(SPRITES[width - MIN_WIDTH], x, y - 10, null);
+    }
+
+    private static void drawShape(Graphics g, int x, int y, int width) {
+        g.setColor(CLOUD_COLOR);
         g.fillOval(x, y, width, 30);
         g.fillOval(x + 20, y - 10, width - 20, 30);
         g.fillOval(x + 10, y + 10, width - 10, 20);
     }
 
     public int getX() { return x; }
+    public int getY() { return y; }
     public int getWidth() { return width; }
 }
 
 class Squirrel {
     private int x, y;
     private double velocity;
-    private static final double GRAVITY = 0.4;
-    private static final double GLIDE_FORCE = -8;
+    static final double GRAVITY = 0.4;
+    static final double GLIDE_FORCE = -8;
     private static final int SIZE = 40;
     private double glideAngle = 0;
 
+    private static final Color BODY_COLOR = new Color(139, 69, 19);          // Saddle brown
+    private static final Color TAIL_COLOR = new Color(160, 82, 45);          // Sienna
+    private static final Color MEMBRANE_COLOR = new Color(169, 169, 169, 180);  // Semi-transparent gray
+
+    // Tail polygon, refilled on every draw instead of allocated
+    private final int[] tailX = new int[4];
+    private final int[] tailY = new int[4];
+
     public Squirrel() {
         reset();
     }
@@ -253,6 +461,17 @@ class Squirrel {
         velocity = GLIDE_FORCE;
     }
 
+    /** Places a squirrel that is only drawn, never simulated. */
+    public void setPose(int x, int y, double glideAngle) {
+        this.x = x;
+        this.y = y;
+        this.glideAngle = glideAngle;
+    }
+
+    public double getGlideAngle() {
+        return glideAngle;
+    }
+
     public void draw(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
@@ -265,21 +484,23 @@ class Squirrel {
         g2d.rotate(glideAngle, x + SIZE/2, y + SIZE/2);
 
         // Body (oval shape)
-        g2d.setColor(new Color(139, 69, 19));  // Saddle brown
+        g2d.setColor(BODY_COLOR);
         g2d.fillOval(x, y, SIZE, SIZE/2);
 
         // Tail (fluffy, curved shape)
-        g2d.setColor(new Color(160, 82, 45));  // Sienna
-        int[] xPoints = {x - 5, x - 15, x - 10, x};
-        int[] yPoints = {y + SIZE/4, y + SIZE/4 - 5, y + SIZE/4 + 10, y + SIZE/4 + 5};
-        g2d.fillPolygon(xPoints, yPoints, 4);
+        g2d.setColor(TAIL_COLOR);
+        tailX[0] = x - 5;  tailY[0] = y + SIZE/4;
+        tailX[1] = x - 15; tailY[1] = y + SIZE/4 - 5;
+        tailX[2] = x - 10; tailY[2] = y + SIZE/4 + 10;
+        tailX[3] = x;      tailY[3] = y + SIZE/4 + 5;
+        g2d.fillPolygon(tailX, tailY, 4);
 
         // Gliding membrane
-        g2d.setColor(new Color(169, 169, 169, 180));  // Semi-transparent gray
+        g2d.setColor(MEMBRANE_COLOR);
         g2d.fillArc(x - 5, y - 5, SIZE + 10, SIZE + 10, 0, 180);
 
         // Head
-        g2d.setColor(new Color(139, 69, 19));  // Saddle brown
+        g2d.setColor(BODY_COLOR);
         g2d.fillOval(x + SIZE - 15, y - 5, SIZE/2, SIZE/2);
 
         // Eye
@@ -289,7 +510,8 @@ class Squirrel {
         // Nose
         g2d.fillOval(x + SIZE + 2, y + 5, 3, 3);
 
-        // Restore the original transform
+        // Restore the original transform exactly; rotating back leaves rounding error that
+        // pushes every later fill onto the slower, allocating transformed path
         g2d.setTransform(old);
     }
 
@@ -307,17 +529,40 @@ class Squirrel {
         return new Rectangle(x, y, SIZE, SIZE/2);
     }
 
+    public int getX() {
+        return x;
+    }
+
     public int getY() {
         return y;
     }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public int getWidth() {
+        return SIZE;
+    }
+
+    public int getHeight() {
+        return SIZE/2;
+    }
 }
 
 class TreeObstacle {
+    static final int SPEED = 3;
+    private static final Color CROWN_COLOR = new Color(47, 79, 47);  // Dark green
+
     private int x;
     private int height;
     private int width;
     private int gap;
 
+    // Trunk and crown rendered once and blitted, since gradient and antialiased fills allocate per call
+    private BufferedImage trunkImage;
+    private BufferedImage crownImage;
+
     public TreeObstacle(int x, int height, int width, int gap) {
         this.x = x;
         this.height = height;
@@ -325,49 +570,318 @@ class TreeObstacle {
         this.gap = gap;
     }
 
+    /** Moves this tree to a new position so it can be reused instead of reallocated. */
+    public void respawn(int x, int height) {
+        this.x = x;
+        this.height = height;
+    }
+
     public void update() {
-        x -= 3;
+        x -= SPEED;
     }
 
     public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
+        if (trunkImage == null) {
+            prerender();
+        }
 
-        // Tree trunk gradient
-        GradientPaint trunkGradient = new GradientPaint(
-                x, 0, new Color(101, 67, 33),  // Dark brown
-                x + width, 0, new Color(139, 69, 19)  // Saddle brown
-        );
-        g2d.setPaint(trunkGradient);
-
-        // Top tree section
-        g2d.fillRect(x, 0, width, height);
-        // Top tree crown
-        int crownWidth = width + 20;
-        g2d.setColor(new Color(47, 79, 47));  // Dark green
-        g2d.fillOval(x - 10, height - 30, crownWidth, 40);
+        // Top tree section and crown
+        g.drawImage(trunkImage, x, 0, x + width, height, 0, 0, width, height, null);
+        g.drawImage(crownImage, x - 10, height - 30, null);
 
-        // Bottom tree section
+        // Bottom tree section and crown
         int bottomStart = height + gap;
-        g2d.setPaint(trunkGradient);
-        g2d.fillRect(x, bottomStart, width, 600 - bottomStart);
-        // Bottom tree crown
-        g2d.setColor(new Color(47, 79, 47));
-        g2d.fillOval(x - 10, bottomStart - 10, crownWidth, 40);
+        g.drawImage(trunkImage, x, bottomStart, x + width, 600, 0, bottomStart, width, 600, null);
+        g.drawImage(crownImage, x - 10, bottomStart - 10, null);
+    }
+
+    private void prerender() {
+        trunkImage = new BufferedImage(width, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D trunk = trunkImage.createGraphics();
+        // Tree trunk gradient
+        trunk.setPaint(new GradientPaint(
+                0, 0, new Color(101, 67, 33),  // Dark brown
+                width, 0, new Color(139, 69, 19)  // Saddle brown
+        ));
+        trunk.fillRect(0, 0, width, 600);
+        trunk.dispose();
+
+        int crownWidth = width + 20;
+        crownImage = new BufferedImage(crownWidth, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D crown = crownImage.createGraphics();
+        crown.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        crown.setColor(CROWN_COLOR);
+        crown.fillOval(0, 0, crownWidth, 40);
+        crown.dispose();
     }
 
     public boolean collidesWith(Squirrel squirrel) {
-        Rectangle squirrelRect = squirrel.getBounds();
-        Rectangle topTree = new Rectangle(x, 0, width, height);
-        Rectangle bottomTree = new Rectangle(x, height + gap, width, 600 - (height + gap));
+        int sx = squirrel.getX();
+        int sy = squirrel.getY();
+        int sw = squirrel.getWidth();
+        int sh = squirrel.getHeight();
+        int bottomStart = height + gap;
+
+        return intersects(sx, sy, sw, sh, x, 0, width, height)
+                || intersects(sx, sy, sw, sh, x, bottomStart, width, 600 - bottomStart);
+    }
 
-        return squirrelRect.intersects(topTree) || squirrelRect.intersects(bottomTree);
+    // Same test as Rectangle.intersects, without allocating the rectangles
+    static boolean intersects(int ax, int ay, int aw, int ah, int bx, int by, int bw, int bh) {
+        if (aw <= 0 || ah <= 0 || bw <= 0 || bh <= 0) {
+            return false;
+        }
+        return bx < ax + aw && by < ay + ah && ax < bx + bw && ay < by + bh;
     }
 
     public int getX() {
         return x;
     }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getGap() {
+        return gap;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+}
+
+class GameWorld {
+    public static final int WIDTH = 1200;
+    public static final int HEIGHT = 600;
+    public static final int OBSTACLE_SPACING = 300;
+    public static final int OBSTACLE_WIDTH = 80;
+    public static final int GAP_HEIGHT = 200;
+    private static final int OBSTACLE_COUNT = 3;
+
+    public static final int MIN_TREE_HEIGHT = 50;
+    public static final int MAX_TREE_HEIGHT = HEIGHT - GAP_HEIGHT - 150;
+
+    // Bits returned by tick()
+    public static final int SCORED = 1;
+    public static final int CRASHED = 2;
+
+    // What ended the run, after tick() returns CRASHED
+    public static final int CAUSE_CEILING = 1;
+    public static final int CAUSE_GROUND = 2;
+    public static final int CAUSE_TREE_TOP = 3;
+    public static final int CAUSE_TREE_BOTTOM = 4;
+
+    private final Squirrel squirrel;
+    private final ArrayList<TreeObstacle> obstacles;
+    private final Random seeds;
+    private final Random random = new Random();
+    private long seed;
+    private int ticks;
+    private int score;
+    private String scoreText;
+    private int crashCause;
+    private int crashTreeHeight;
+    private int crashTreeGap;
+
+    public GameWorld() {
+        this(new Random());
+    }
+
+    public GameWorld(long seed) {
+        this(new Random(seed));
+    }
+
+    private GameWorld(Random seeds) {
+        this.seeds = seeds;
+        this.squirrel = new Squirrel();
+        this.obstacles = new ArrayList<>(OBSTACLE_COUNT);
+        reset();
+    }
+
+    /** Starts a new run with a fresh seed. */
+    public void reset() {
+        reset(seeds.nextLong());
+    }
+
+    /** Starts a new run whose trees are determined by the given seed, as when replaying. */
+    public void reset(long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
+        ticks = 0;
+        crashCause = 0;
+        squirrel.reset();
+        setScore(0);
+
+        // Reuse the existing trees once the world has been populated
+        for (int i = 0; i < OBSTACLE_COUNT; i++) {
+            int x = WIDTH + i * OBSTACLE_SPACING;
+            if (i < obstacles.size()) {
+                obstacles.get(i).respawn(x, nextObstacleHeight());
+            } else {
+                obstacles.add(new TreeObstacle(x, nextObstacleHeight(), OBSTACLE_WIDTH, GAP_HEIGHT));
+            }
+        }
+    }
+
+    private int nextObstacleHeight() {
+        return random.nextInt(Math.max(1, MAX_TREE_HEIGHT - MIN_TREE_HEIGHT)) + MIN_TREE_HEIGHT;
+    }
+
+    public void glide() {
+        squirrel.glide();
+    }
+
+    /**
+     * Advances the world by one frame. The squirrel crashes into the ground once it
+     * drops to groundY. Returns a combination of SCORED and CRASHED.
+     */
+    public int tick(int groundY) {
+        int result = 0;
+        ticks++;
+        squirrel.update();
+
+        for (int i = obstacles.size() - 1; i >= 0; i--) {
+            TreeObstacle obstacle = obstacles.get(i);
+            obstacle.update();
+
+            if (obstacle.getX() + OBSTACLE_WIDTH < 0) {
+                obstacles.remove(i);
+                obstacle.respawn(obstacles.get(obstacles.size()-1).getX() + OBSTACLE_SPACING,
+                        nextObstacleHeight());
+                obstacles.add(obstacle);
+                setScore(score + 1);
+                result |= SCORED;
+            }
+
+            if (obstacle.collidesWith(squirrel) && (result & CRASHED) == 0) {
+                boolean top = squirrel.getY() + squirrel.getHeight() / 2 < obstacle.getHeight() + obstacle.getGap() / 2;
+                crashed(top ? CAUSE_TREE_TOP : CAUSE_TREE_BOTTOM, obstacle);
+                result |= CRASHED;
+            }
+        }
+
+        if ((squirrel.getY() <= 0 || squirrel.getY() >= groundY) && (result & CRASHED) == 0) {
+            crashed(squirrel.getY() <= 0 ? CAUSE_CEILING : CAUSE_GROUND, nextObstacle());
+            result |= CRASHED;
+        }
+        return result;
+    }
+
+    private void crashed(int cause, TreeObstacle tree) {
+        crashCause = cause;
+        crashTreeHeight = tree != null ? tree.getHeight() : -1;
+        crashTreeGap = tree != null ? tree.getGap() : -1;
+    }
+
+    // The first tree the squirrel has not yet passed
+    private TreeObstacle nextObstacle() {
+        TreeObstacle next = null;
+        for (int i = 0; i < obstacles.size(); i++) {
+            TreeObstacle obstacle = obstacles.get(i);
+            if (obstacle.getX() + obstacle.getWidth() >= squirrel.getX()
+                    && (next == null || obstacle.getX() < next.getX())) {
+                next = obstacle;
+            }
+        }
+        return next;
+    }
+
+    private void setScore(int score) {
+        this.score = score;
+        // Built once per point instead of once per frame
+        this.scoreText = "Score: " + score;
+    }
+
+    public void drawObstacles(Graphics2D g2d) {
+        for (int i = 0; i < obstacles.size(); i++) {
+            obstacles.get(i).draw(g2d);
+        }
+    }
+
+    public void drawSquirrel(Graphics2D g2d) {
+        squirrel.draw(g2d);
+    }
+
+    public void drawScore(Graphics2D g2d) {
+        Hud.drawScore(g2d, scoreText);
+    }
+
+    public Squirrel getSquirrel() {
+        return squirrel;
+    }
+
+    public ArrayList<TreeObstacle> getObstacles() {
+        return obstacles;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public String getScoreText() {
+        return scoreText;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Number of ticks since the run started. */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /** One of the CAUSE_ constants once the run has crashed, otherwise 0. */
+    public int getCrashCause() {
+        return crashCause;
+    }
+
+    /** Height of the tree involved in the crash, or of the next tree for the ground and ceiling. */
+    public int getCrashTreeHeight() {
+        return crashTreeHeight;
+    }
+
+    public int getCrashTreeGap() {
+        return crashTreeGap;
+    }
+}
+
+class Hud {
+    private static final Font SCORE_FONT = new Font("Arial", Font.BOLD, 24);
+    private static final Font TITLE_FONT = new Font("Arial", Font.BOLD, 36);
+
+    private Hud() {}
+
+    public static void drawScore(Graphics2D g2d, String scoreText) {
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(SCORE_FONT);
+        g2d.setColor(FloatySquirrel.TEXT_SHADOW);
+        g2d.drawString(scoreText, 21, 41);
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(scoreText, 20, 40);
+    }
+
+    public static void drawTitle(Graphics2D g2d, String text, int y) {
+        drawCenteredText(g2d, text, TITLE_FONT, y);
+    }
+
+    public static void drawSubtitle(Graphics2D g2d, String text, int y) {
+        drawCenteredText(g2d, text, SCORE_FONT, y);
+    }
+
+    private static void drawCenteredText(Graphics2D g2d, String text, Font font, int y) {
+        g2d.setFont(font);
+        FontMetrics fm = g2d.getFontMetrics();
+        int x = (GameWorld.WIDTH - fm.stringWidth(text)) / 2;
+
+        g2d.setColor(FloatySquirrel.TEXT_SHADOW);
+        g2d.drawString(text, x + 2, y + 2);
+        g2d.setColor(Color.WHITE);
+        g2d.drawString(text, x, y);
+    }
 }
 class MainMenuPanel extends JPanel {
     private FloatySquirrel game;
@@ -377,19 +891,40 @@ class MainMenuPanel extends JPanel {
     private float mascotVelocity = 0;
     private Timer animationTimer;
 
+    // Attract mode: after a while without input the autopilot plays a demo behind the menu
+    private static final long ATTRACT_DELAY_MILLIS = 10000;
+    private GameWorld demo;
+    private Autopilot autopilot;
+    private boolean attractMode;
+    private long lastInput = System.currentTimeMillis();
+
     public MainMenuPanel(FloatySquirrel game) {
         this.game = game;
         this.background = new Background();
         this.mascot = new Squirrel();
+        this.demo = new GameWorld();
+        this.autopilot = new Autopilot();
         setLayout(new GridBagLayout());
 
+        Toolkit.getDefaultToolkit().addAWTEventListener(e -> lastInput = System.currentTimeMillis(),
+                AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+
         animationTimer = new Timer(16, e -> {
             background.update();
-            mascotVelocity += 0.2;
-            mascotY += mascotVelocity;
-            if (mascotY > 270) {
-                mascotY = 270;
-                mascotVelocity = -4;
+            boolean idle = isShowing() && System.currentTimeMillis() - lastInput > ATTRACT_DELAY_MILLIS;
+            if (idle != attractMode) {
+                setAttractMode(idle);
+            }
+
+            if (attractMode) {
+                stepDemo();
+            } else {
+                mascotVelocity += 0.2;
+                mascotY += mascotVelocity;
+                if (mascotY > 270) {
+                    mascotY = 270;
+                    mascotVelocity = -4;
+                }
             }
             repaint();
         });
@@ -461,155 +996,239 @@ class MainMenuPanel extends JPanel {
         add(button, gbc);
     }
 
+    private void setAttractMode(boolean enabled) {
+        attractMode = enabled;
+        if (enabled) {
+            demo.reset();
+            autopilot.start();
+            autopilot.observe(demo, getHeight() - 100);
+        } else {
+            autopilot.stop();
+        }
+    }
+
+    private void stepDemo() {
+        int groundY = getHeight() - 100;
+        if (autopilot.shouldGlide(demo)) {
+            demo.glide();
+        }
+        if ((demo.tick(groundY) & GameWorld.CRASHED) != 0) {
+            demo.reset();
+        }
+        autopilot.observe(demo, groundY);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         background.draw(g);
-        mascot.drawAt(g, 600, (int)mascotY);  // Centered for 1200 width
+        if (attractMode) {
+            Graphics2D g2d = (Graphics2D) g;
+            demo.drawObstacles(g2d);
+            demo.drawSquirrel(g2d);
+            demo.drawScore(g2d);
+        } else {
+            mascot.drawAt(g, 600, (int)mascotY);  // Centered for 1200 width
+        }
     }
 }
 
-class GamePanel extends JPanel implements ActionListener, KeyListener {
+class GamePanel extends JPanel implements KeyListener {
+    private static final long TICK_NANOS = 16_000_000L;  // same rate as the old Swing timer
+
+    // Input posted by the EDT for the simulation thread
+    private static final int GLIDE = 1;
+    private static final int RESET = 2;
+
     private FloatySquirrel game;
-    private Squirrel squirrel;
-    private ArrayList<TreeObstacle> obstacles;
-    private Timer timer;
-    private boolean isPlaying;
-    private int score;
-    private Random random;
     private Background background;
+    private final TripleBuffer<RenderFrame> frames =
+            new TripleBuffer<>(new RenderFrame(), new RenderFrame(), new RenderFrame());
+    private final FrameRenderer renderer = new FrameRenderer();
+    private final AtomicInteger input = new AtomicInteger();
+    private final Thread simulation;
+    private volatile int groundY = HEIGHT - 100;  // until the first layout reports the real size
+
+    // Simulation thread only
+    private GameWorld world;
+    private Replay replay;
+    private TelemetryLog telemetry;
+    private boolean isPlaying;
+    private boolean isOver;  // crashed, until the game over dialog is dismissed
 
-    private static final int WIDTH = 1200;
     private static final int HEIGHT = 600;
-    private static final int OBSTACLE_SPACING = 300;
-    private static final int OBSTACLE_SPEED = 3;
-    private static final int OBSTACLE_WIDTH = 80;
-    private static final int GAP_HEIGHT = 200;
 
     public GamePanel(FloatySquirrel game) {
         this.game = game;
         setBackground(Color.cyan);
         setFocusable(true);
         addKeyListener(this);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                groundY = getHeight() - 100;
+            }
+        });
 
-        squirrel = new Squirrel();
-        obstacles = new ArrayList<>();
-        random = new Random();
+        world = new GameWorld();
         background = new Background();
-
-        timer = new Timer(16, this);
         resetGame();
-    }
-
-    private void resetGame() {
-        squirrel.reset();
-        obstacles.clear();
-        score = 0;
-        isPlaying = false;
-
-        for (int i = 0; i < 3; i++) {
-            addObstacle(WIDTH + i * OBSTACLE_SPACING);
-        }
-
-        repaint();
-    }
 
-    private void addObstacle(int x) {
-        int minHeight = 50;
-        int maxHeight = HEIGHT - GAP_HEIGHT - 150;
-        int height = random.nextInt(Math.max(1, maxHeight - minHeight)) + minHeight;
-        obstacles.add(new TreeObstacle(x, height, OBSTACLE_WIDTH, GAP_HEIGHT));
+        // The game logic runs on its own thread so menus, dialogs and layout on the
+        // EDT never delay it. Neither thread ever waits for the other: frames go out
+        // through the triple buffer and input comes back as atomic flags.
+        simulation = new Thread(this::simulate, "simulation");
+        simulation.setDaemon(true);
+        simulation.start();
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
-        background.draw(g);
-        background.update();
-
-        for (TreeObstacle obstacle : obstacles) {
-            obstacle.draw(g);
-        }
-
-        squirrel.draw(g);
-
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
-                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-        String scoreText = "Score: " + score;
-        g2d.setFont(new Font("Arial", Font.BOLD, 24));
-        g2d.setColor(new Color(0, 0, 0, 60));
-        g2d.drawString(scoreText, 21, 41);
-        g2d.setColor(Color.WHITE);
-        g2d.drawString(scoreText, 20, 40);
-
-        if (!isPlaying) {
-            drawCenteredText(g2d, "Press SPACE to start", 36, HEIGHT/2);
-            drawCenteredText(g2d, "Press ESC for menu", 24, HEIGHT/2 + 50);
-        }
+    private void post(int command) {
+        input.getAndAccumulate(command, (a, b) -> a | b);
+        LockSupport.unpark(simulation);
     }
 
-    private void drawCenteredText(Graphics2D g2d, String text, int fontSize, int y) {
-        g2d.setFont(new Font("Arial", Font.BOLD, fontSize));
-        FontMetrics fm = g2d.getFontMetrics();
-        int x = (WIDTH - fm.stringWidth(text)) / 2;
-
-        g2d.setColor(new Color(0, 0, 0, 60));
-        g2d.drawString(text, x + 2, y + 2);
-        g2d.setColor(Color.WHITE);
-        g2d.drawString(text, x, y);
-    }
+    private void simulate() {
+        long next = System.nanoTime();
+        while (true) {
+            if (isPlaying) {
+                next += TICK_NANOS;
+                long now = System.nanoTime();
+                if (now - next > 5 * TICK_NANOS) {
+                    next = now;  // fell far behind, e.g. the machine was suspended; don't race to catch up
+                }
+                long wait;
+                while ((wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+            } else {
+                while (input.get() == 0) {
+                    LockSupport.park(this);
+                }
+                next = System.nanoTime();
+            }
 
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        if (isPlaying) {
-            squirrel.update();
+            int commands = input.getAndSet(0);
+            if ((commands & RESET) != 0) {
+                resetGame();
+            }
+            if ((commands & GLIDE) != 0 && !isOver) {
+                if (!isPlaying) {
+                    startRun();
+                }
+                world.glide();
+                replay.recordGlide(world.getTicks());
+                if (telemetry != null) {
+                    telemetry.glided(world.getTicks(), world.getSquirrel().getY(), world.getScore());
+                }
+            }
 
-            for (int i = obstacles.size() - 1; i >= 0; i--) {
-                TreeObstacle obstacle = obstacles.get(i);
-                obstacle.update();
+            if (isPlaying) {
+                int result = world.tick(groundY);
+                background.update();
 
-                if (obstacle.getX() + OBSTACLE_WIDTH < 0) {
-                    obstacles.remove(i);
-                    addObstacle(obstacles.get(obstacles.size()-1).getX() + OBSTACLE_SPACING);
-                    score++;
+                if ((result & GameWorld.SCORED) != 0) {
                     game.playScoreSound();
+                    game.setMusicIntensity(world.getScore());
+                    if (telemetry != null) {
+                        telemetry.scored(world.getTicks(), world.getSquirrel().getY(), world.getScore());
+                    }
                 }
-
-                if (obstacle.collidesWith(squirrel)) {
+                if ((result & GameWorld.CRASHED) != 0) {
                     gameOver();
                 }
             }
 
-            if (squirrel.getY() <= 0 || squirrel.getY() >= getHeight() - 100) {
-                gameOver();
-            }
-
+            publishFrame();
             repaint();
         }
     }
 
-    private void gameOver() {
-        isPlaying = false;
-        timer.stop();
-        game.updateHighScore(score);
-        JOptionPane.showMessageDialog(this, "Game Over! Score: " + score);
-        resetGame();
+    private void startRun() {
+        isPlaying = true;
+        replay = new Replay(world.getSeed());
+        if (telemetry == null && game.isTelemetryEnabled()) {
+            telemetry = new TelemetryLog(TelemetryLog.newSessionFile());
+        } else if (telemetry != null && !game.isTelemetryEnabled()) {
+            telemetry.close();
+            telemetry = null;
+        }
+        if (telemetry != null) {
+            telemetry.runStarted(world.getSeed());
+        }
+        game.setMusicIntensity(0);
+        game.setMusicPlaying(true);
     }
 
-    @Override
+    private void resetGame() {
+        if (telemetry != null) {
+            telemetry.flush();
+        }
+        world.reset();
+        background.reset(world.getSeed());  // so ReplayExporter redraws the sky the player saw
+        isPlaying = false;
+        isOver = false;
+        game.setMusicPlaying(false);
+        publishFrame();
+    }
+
+    private void publishFrame() {
+        frames.back().copyFrom(world, background, isPlaying);
+        frames.publish();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        frames.update();
+        RenderFrame frame = frames.front();
+
+        frame.background.draw(g);
+
+        renderer.drawObstacles(g2d, frame);
+        renderer.drawSquirrel(g2d, frame);
+        renderer.drawScore(g2d, frame);
+
+        if (!frame.playing) {
+            Hud.drawTitle(g2d, "Press SPACE to start", HEIGHT/2);
+            Hud.drawSubtitle(g2d, "Press ESC for menu", HEIGHT/2 + 50);
+        }
+    }
+
+    private void gameOver() {
+        isPlaying = false;
+        isOver = true;
+        game.setMusicPlaying(false);
+        int score = world.getScore();
+        game.updateHighScore(score);
+        if (telemetry != null) {
+            telemetry.died(world.getTicks(), world.getSquirrel().getY(), score,
+                    world.getCrashCause(), world.getCrashTreeHeight(), world.getCrashTreeGap());
+        }
+        saveReplay();
+        // The dialog is modal, so it goes to the EDT and the next run starts once it closes
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this, "Game Over! Score: " + score);
+            post(RESET);
+        });
+    }
+
+    // Keeps the last run on disk so it can be exported with --export
+    private void saveReplay() {
+        replay.finish(world.getTicks(), groundY);
+        try {
+            replay.save(Replay.getLastRunFile());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
     public void keyPressed(KeyEvent e) {
         if (e.getKeyCode() == KeyEvent.VK_SPACE) {
-            if (!isPlaying) {
-                isPlaying = true;
-                timer.start();
-            }
-            squirrel.glide();
+            post(GLIDE);
         } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
-            timer.stop();
-            isPlaying = false;
-            resetGame();
+            post(RESET);
             game.switchToPanel("Menu");
         }
     }
@@ -722,6 +1341,13 @@ class SettingsPanel extends JPanel {
         soundToggle.addActionListener(e -> game.setSoundEnabled(soundToggle.isSelected()));
         add(soundToggle, gbc);
 
+        JCheckBox musicToggle = new JCheckBox("Enable Music", game.isMusicEnabled());
+        musicToggle.setFont(new Font("Arial", Font.BOLD, 20));
+        musicToggle.setForeground(new Color(101, 67, 33));
+        musicToggle.setOpaque(false);
+        musicToggle.addActionListener(e -> game.setMusicEnabled(musicToggle.isSelected()));
+        add(musicToggle, gbc);
+
         JCheckBox resizeToggle = new JCheckBox("Allow Window Resizing", false);
         resizeToggle.setFont(new Font("Arial", Font.BOLD, 20));
         resizeToggle.setForeground(new Color(101, 67, 33));
@@ -729,6 +1355,13 @@ class SettingsPanel extends JPanel {
         resizeToggle.addActionListener(e -> game.setResizable(resizeToggle.isSelected()));
         add(resizeToggle, gbc);
 
+        JCheckBox telemetryToggle = new JCheckBox("Record Gameplay Telemetry", game.isTelemetryEnabled());
+        telemetryToggle.setFont(new Font("Arial", Font.BOLD, 20));
+        telemetryToggle.setForeground(new Color(101, 67, 33));
+        telemetryToggle.setOpaque(false);
+        telemetryToggle.addActionListener(e -> game.setTelemetryEnabled(telemetryToggle.isSelected()));
+        add(telemetryToggle, gbc);
+
         JButton backButton = new JButton("Back to Menu") {
             @Override
             protected void paintComponent(Graphics g) {
@@ -776,3 +1409,1542 @@ class SettingsPanel extends JPanel {
         background.draw(g);
     }
 }
+
+/**
+ * Everything the painter needs from one simulation tick, scenery included. Instances are recycled through
+ * a TripleBuffer, so publishing a frame allocates nothing.
+ */
+class RenderFrame {
+    static final int MAX_OBSTACLES = 8;
+
+    boolean playing;
+    final Background background = new Background();
+    int squirrelX, squirrelY;
+    double squirrelAngle;
+    String scoreText = "Score: 0";
+    int obstacleCount;
+    final int[] obstacleX = new int[MAX_OBSTACLES];
+    final int[] obstacleHeight = new int[MAX_OBSTACLES];
+    final int[] obstacleWidth = new int[MAX_OBSTACLES];
+    final int[] obstacleGap = new int[MAX_OBSTACLES];
+
+    void copyFrom(GameWorld world, Background background, boolean playing) {
+        this.playing = playing;
+        this.background.copyFrom(background);
+        Squirrel squirrel = world.getSquirrel();
+        squirrelX = squirrel.getX();
+        squirrelY = squirrel.getY();
+        squirrelAngle = squirrel.getGlideAngle();
+        scoreText = world.getScoreText();
+
+        ArrayList<TreeObstacle> obstacles = world.getObstacles();
+        obstacleCount = Math.min(obstacles.size(), MAX_OBSTACLES);
+        for (int i = 0; i < obstacleCount; i++) {
+            TreeObstacle obstacle = obstacles.get(i);
+            obstacleX[i] = obstacle.getX();
+            obstacleHeight[i] = obstacle.getHeight();
+            obstacleWidth[i] = obstacle.getWidth();
+            obstacleGap[i] = obstacle.getGap();
+        }
+    }
+}
+
+/** Draws RenderFrames with the regular sprite code, using its own posed copies of them. */
+class FrameRenderer {
+    private final Squirrel squirrel = new Squirrel();
+    private final ArrayList<TreeObstacle> obstacles = new ArrayList<>();
+
+    public void drawObstacles(Graphics2D g2d, RenderFrame frame) {
+        for (int i = 0; i < frame.obstacleCount; i++) {
+            if (i == obstacles.size()) {
+                obstacles.add(new TreeObstacle(frame.obstacleX[i], frame.obstacleHeight[i],
+                        frame.obstacleWidth[i], frame.obstacleGap[i]));
+            }
+            TreeObstacle obstacle = obstacles.get(i);
+            obstacle.respawn(frame.obstacleX[i], frame.obstacleHeight[i]);
+            obstacle.draw(g2d);
+        }
+    }
+
+    public void drawSquirrel(Graphics2D g2d, RenderFrame frame) {
+        squirrel.setPose(frame.squirrelX, frame.squirrelY, frame.squirrelAngle);
+        squirrel.draw(g2d);
+    }
+
+    public void drawScore(Graphics2D g2d, RenderFrame frame) {
+        Hud.drawScore(g2d, frame.scoreText);
+    }
+}
+
+/**
+ * Background music, synthesized procedurally a small block at a time on its own thread.
+ * Blocks go into a ring buffer that feeds a SourceDataLine. The thread only writes what
+ * the line can take without blocking, and all buffers and oscillator state are allocated
+ * up front. Layers are added as the score rises. The line is closed and the thread ends
+ * when the music is stopped or has been paused for a while; it is recreated on demand.
+ */
+class Soundtrack {
+    private static final float SAMPLE_RATE = 22050;
+    private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, true);
+    private static final int BLOCK_FRAMES = 512;                    // about 23 ms
+    private static final int BLOCK_BYTES = BLOCK_FRAMES * 2;
+    private static final int RING_BYTES = BLOCK_BYTES * 4;
+    private static final int LINE_BUFFER_BYTES = BLOCK_BYTES * 4;
+    private static final long BLOCK_NANOS = (long) (BLOCK_FRAMES * 1e9 / SAMPLE_RATE);
+    private static final int RECOVERY_BLOCKS = 200;                 // run lean for ~5 s after an underrun
+    private static final long IDLE_NANOS = 10_000_000_000L;         // give the line back after 10 s paused
+
+    private static final int TABLE_SIZE = 4096;
+    private static final float[] SINE = new float[TABLE_SIZE];
+    static {
+        for (int i = 0; i < TABLE_SIZE; i++) {
+            SINE[i] = (float) Math.sin(2 * Math.PI * i / TABLE_SIZE);
+        }
+    }
+
+    // A minor progression: Am, F, C, G, one chord per bar, as MIDI note numbers
+    private static final int[][] CHORDS = {{45, 48, 52}, {41, 45, 48}, {48, 52, 55}, {43, 47, 50}};
+    private static final int STEPS_PER_BAR = 8;  // eighth notes
+
+    private volatile boolean playing;
+    private volatile int intensity;
+    private final AtomicReference<Thread> worker = new AtomicReference<>();
+
+    // Audio thread only; a replacement thread waits on ring until the one before it has exited
+    private final byte[] ring = new byte[RING_BYTES];
+    private int ringRead;
+    private int ringFill;
+    private int reducedBlocks;
+    private int step;
+    private int samplesUntilStep;
+    private int noise = 0x2545F491;
+
+    // Oscillators: phase and increment in table units, amplitude envelopes per sample
+    private double bassPhase, bassIncrement;
+    private float bassLevel;
+    private double padPhase1, padIncrement1, padPhase2, padIncrement2;
+    private float padLevel;
+    private double arpPhase, arpIncrement;
+    private float arpLevel;
+    private float hatLevel;
+    private float arpGain, hatGain;
+
+    /** Starts or pauses the music. The audio thread is created on first use. */
+    public void setPlaying(boolean playing) {
+        this.playing = playing;
+        Thread thread = worker.get();
+        if (playing && thread == null) {
+            thread = new Thread(this::run, "soundtrack");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            if (worker.compareAndSet(null, thread)) {
+                thread.start();
+                return;
+            }
+            thread = worker.get();  // someone else started one first
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Silences the music and releases the audio line until it is next played. */
+    public void stop() {
+        playing = false;
+        Thread thread = worker.getAndSet(null);
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Sets how busy the music is; driven by the current score. */
+    public void setIntensity(int score) {
+        this.intensity = score;
+    }
+
+    private void run() {
+        synchronized (ring) {
+            play();
+        }
+    }
+
+    private void play() {
+        Thread self = Thread.currentThread();
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BUFFER_BYTES);
+        } catch (Exception e) {
+            // Unregister so the next play request retries, e.g. once a busy device is free
+            worker.compareAndSet(self, null);
+            e.printStackTrace();
+            return;
+        }
+
+        ringFill = 0;
+        boolean primed = false;
+        long pausedAt = System.nanoTime();
+        try {
+            while (worker.get() == self) {
+                if (!playing) {
+                    if (primed) {
+                        line.stop();
+                        line.flush();
+                        ringFill = 0;
+                        primed = false;
+                        pausedAt = System.nanoTime();
+                    }
+                    long idle = System.nanoTime() - pausedAt;
+                    if (idle < IDLE_NANOS) {
+                        LockSupport.parkNanos(this, IDLE_NANOS - idle);
+                    } else if (worker.compareAndSet(self, null)) {
+                        // Retired; if play was asked for while we were leaving, it saw this
+                        // thread still registered, so start a fresh one on its behalf
+                        if (playing) {
+                            setPlaying(true);
+                        }
+                        return;
+                    }
+                    continue;
+                }
+
+                while (ringFill <= RING_BYTES - BLOCK_BYTES) {
+                    synthesizeBlock();
+                }
+
+                int space = line.available();
+                if (primed && space >= line.getBufferSize()) {
+                    // The line drained while we were descheduled: drop the costlier layers
+                    // for a while, and refill from the ring, which is already ahead
+                    reducedBlocks = RECOVERY_BLOCKS;
+                }
+                int length = Math.min(space, ringFill) & ~1;
+                while (length > 0) {
+                    int chunk = Math.min(length, RING_BYTES - ringRead);
+                    line.write(ring, ringRead, chunk);
+                    ringRead = (ringRead + chunk) % RING_BYTES;
+                    ringFill -= chunk;
+                    length -= chunk;
+                }
+                if (!primed) {
+                    line.start();
+                    primed = true;
+                }
+                LockSupport.parkNanos(BLOCK_NANOS / 2);
+            }
+        } finally {
+            line.close();
+        }
+    }
+
+    private void synthesizeBlock() {
+        int level = intensity;
+        boolean lean = reducedBlocks > 0;
+        if (lean) {
+            reducedBlocks--;
+        }
+        // Layer gains glide towards their targets once per block so entries are not abrupt
+        arpGain += ((level >= 3 ? 1f : 0f) - arpGain) * 0.05f;
+        hatGain += ((level >= 8 && !lean ? 1f : 0f) - hatGain) * 0.05f;
+        int samplesPerStep = (int) (SAMPLE_RATE * 60 / (96 + 2 * Math.min(level, 30)) / 2);
+
+        int write = (ringRead + ringFill) % RING_BYTES;
+        for (int i = 0; i < BLOCK_FRAMES; i++) {
+            if (--samplesUntilStep <= 0) {
+                nextStep();
+                samplesUntilStep = samplesPerStep;
+            }
+
+            float sample = lookup(bassPhase) * bassLevel * 0.5f;
+            bassPhase = wrap(bassPhase + bassIncrement);
+            bassLevel *= 0.99985f;
+
+            sample += lookup(padPhase1) * padLevel * 0.12f;
+            padPhase1 = wrap(padPhase1 + padIncrement1);
+            if (!lean) {
+                sample += lookup(padPhase2) * padLevel * 0.12f;
+                padPhase2 = wrap(padPhase2 + padIncrement2);
+            }
+            padLevel += (1f - padLevel) * 0.0002f;
+
+            if (arpGain > 0.01f) {
+                // Fundamental plus a third harmonic for a soft, reedy pluck
+                float arp = lookup(arpPhase) + lookup(arpPhase * 3) * 0.3f;
+                sample += arp * arpLevel * arpGain * 0.18f;
+                arpPhase = wrap(arpPhase + arpIncrement);
+                arpLevel *= 0.9993f;
+            }
+
+            if (hatGain > 0.01f) {
+                noise ^= noise << 13;
+                noise ^= noise >>> 17;
+                noise ^= noise << 5;
+                sample += (noise / (float) Integer.MAX_VALUE) * hatLevel * hatGain * 0.06f;
+                hatLevel *= 0.996f;
+            }
+
+            // Soft clip, then scale well below the score chime
+            sample = sample / (1f + Math.abs(sample));
+            short value = (short) (sample * 6000);
+            ring[write] = (byte) (value >> 8);
+            ring[write + 1] = (byte) value;
+            write = (write + 2) % RING_BYTES;
+        }
+        ringFill += BLOCK_BYTES;
+    }
+
+    private void nextStep() {
+        int[] chord = CHORDS[(step / STEPS_PER_BAR) % CHORDS.length];
+        int beat = step % STEPS_PER_BAR;
+        if (beat == 0 || beat == 4) {
+            bassIncrement = increment(chord[0] - 12);
+            bassLevel = 1f;
+        }
+        if (beat == 0) {
+            padIncrement1 = increment(chord[1] + 12);
+            padIncrement2 = increment(chord[2] + 12) * 1.003;  // slight detune for width
+        }
+        arpIncrement = increment(chord[beat % chord.length] + 24);
+        arpLevel = 1f;
+        if (beat % 2 == 1) {
+            hatLevel = 1f;
+        }
+        step++;
+    }
+
+    private static double increment(int midiNote) {
+        double frequency = 440 * Math.pow(2, (midiNote - 69) / 12.0);
+        return frequency * TABLE_SIZE / SAMPLE_RATE;
+    }
+
+    // Keeps phases small so they do not lose precision over a long session
+    private static double wrap(double phase) {
+        return phase >= TABLE_SIZE ? phase - TABLE_SIZE : phase;
+    }
+
+    private static float lookup(double phase) {
+        return SINE[(int) phase & (TABLE_SIZE - 1)];
+    }
+}
+
+/**
+ * Hands the latest value from one writer thread to one reader thread without either
+ * ever waiting. The writer fills back() and publishes it; the reader calls update() and
+ * reads front(). The three instances are recycled, so nothing is allocated after
+ * construction.
+ */
+class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int DIRTY = 4;
+
+    private final T[] buffers;
+    // Index of the middle buffer, plus DIRTY when it holds a value the reader has not seen
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;   // writer thread only
+    private int front = 2;  // reader thread only
+
+    public TripleBuffer(T first, T second, T third) {
+        @SuppressWarnings("unchecked")
+        T[] buffers = (T[]) new Object[] {first, second, third};
+        this.buffers = buffers;
+    }
+
+    /** The buffer the writer may fill. */
+    public T back() {
+        return buffers[back];
+    }
+
+    /** Makes the filled back buffer the latest value and hands the writer a free one. */
+    public void publish() {
+        back = middle.getAndSet(back | DIRTY) & INDEX_MASK;
+    }
+
+    /** Swaps in the latest published value, if there is one. Returns false if nothing new. */
+    public boolean update() {
+        if ((middle.get() & DIRTY) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /** The latest value the reader has swapped in. */
+    public T front() {
+        return buffers[front];
+    }
+}
+
+/**
+ * Plays the game on its own, for the menu's attract mode and for soak tests. A worker
+ * thread beam-searches glide/no-glide decisions against the upcoming trees on a copy of
+ * the physics that allocates nothing, and publishes the chosen plan for the game loop
+ * to read without locking.
+ */
+class Autopilot {
+    static final int STEP_TICKS = 4;               // one glide decision every 4 ticks
+    private static final int MAX_DECISIONS = 16;   // one bit each in the published plan
+    private static final int BEAM_WIDTH = 128;
+    private static final long DEADLINE_NANOS = 6_000_000L;  // well inside the 16 ms tick
+    private static final long NO_PLAN = -1;
+    private static final int TICK_SHIFT = 21;
+    private static final long TICK_MASK = (1L << 35) - 1;
+    private static final int DEPTH_SHIFT = 16;
+    private static final long DEPTH_MASK = 0x1F;  // up to MAX_DECISIONS
+
+    private final TripleBuffer<Snapshot> snapshots =
+            new TripleBuffer<>(new Snapshot(), new Snapshot(), new Snapshot());
+    // (epoch << 56) | (first decision tick << 21) | (decisions searched << 16) | one glide bit per decision
+    private volatile long plan = NO_PLAN;
+    private volatile double nodesPerMillisecond;
+    private volatile Thread worker;
+
+    // Game thread only
+    private int epoch;
+    private long lastSeed;
+
+    // Planner thread only
+    private final int[] beamY = new int[BEAM_WIDTH];
+    private final double[] beamVelocity = new double[BEAM_WIDTH];
+    private final int[] candidateY = new int[BEAM_WIDTH * 2];
+    private final double[] candidateVelocity = new double[BEAM_WIDTH * 2];
+    private final int[] candidateParent = new int[BEAM_WIDTH * 2];
+    private final boolean[] candidateGlide = new boolean[BEAM_WIDTH * 2];
+    private final double[] candidateScore = new double[BEAM_WIDTH * 2];
+    private final int[] order = new int[BEAM_WIDTH * 2];
+    private final int[][] parents = new int[MAX_DECISIONS][BEAM_WIDTH];
+    private final boolean[][] glides = new boolean[MAX_DECISIONS][BEAM_WIDTH];
+    private int beamSize;
+    private int stepY;
+    private double stepVelocity;
+    private long previousPlan = NO_PLAN;
+
+    /** What the planner needs to know about the world, copied out once per tick. */
+    private static final class Snapshot {
+        static final int MAX_OBSTACLES = 8;
+
+        int epoch;
+        int ticks;
+        int groundY;
+        int squirrelX, squirrelY, squirrelWidth, squirrelHeight;
+        double velocity;
+        int obstacleCount;
+        final int[] obstacleX = new int[MAX_OBSTACLES];
+        final int[] obstacleHeight = new int[MAX_OBSTACLES];
+        final int[] obstacleWidth = new int[MAX_OBSTACLES];
+        final int[] obstacleGap = new int[MAX_OBSTACLES];
+
+        void copyFrom(GameWorld world, int groundY, int epoch) {
+            this.epoch = epoch;
+            this.ticks = world.getTicks();
+            this.groundY = groundY;
+            Squirrel squirrel = world.getSquirrel();
+            squirrelX = squirrel.getX();
+            squirrelY = squirrel.getY();
+            squirrelWidth = squirrel.getWidth();
+            squirrelHeight = squirrel.getHeight();
+            velocity = squirrel.getVelocity();
+
+            ArrayList<TreeObstacle> obstacles = world.getObstacles();
+            obstacleCount = Math.min(obstacles.size(), MAX_OBSTACLES);
+            for (int i = 0; i < obstacleCount; i++) {
+                TreeObstacle obstacle = obstacles.get(i);
+                obstacleX[i] = obstacle.getX();
+                obstacleHeight[i] = obstacle.getHeight();
+                obstacleWidth[i] = obstacle.getWidth();
+                obstacleGap[i] = obstacle.getGap();
+            }
+        }
+    }
+
+    public void start() {
+        if (worker != null) {
+            return;
+        }
+        plan = NO_PLAN;
+        Thread thread = new Thread(this::planLoop, "autopilot");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public void stop() {
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Hands the planner the world as it stands after a tick. Called from the game loop. */
+    public void observe(GameWorld world, int groundY) {
+        if (world.getSeed() != lastSeed) {
+            // A new run; plans made for the old one must not be followed
+            lastSeed = world.getSeed();
+            epoch = (epoch + 1) & 0xFF;
+        }
+        snapshots.back().copyFrom(world, groundY, epoch);
+        snapshots.publish();
+        Thread thread = worker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Whether to glide before the next tick. Called from the game loop; never blocks. */
+    public boolean shouldGlide(GameWorld world) {
+        int tick = world.getTicks();
+        if (tick % STEP_TICKS != 0) {
+            return false;
+        }
+        int decision = decision(plan, epoch, tick);
+        return decision >= 0 ? decision == 1 : fallback(world);
+    }
+
+    // 1 to glide at the tick, 0 not to, or -1 if the plan is stale or was not searched that far
+    private static int decision(long plan, int epoch, int tick) {
+        if (plan == NO_PLAN || (int) (plan >>> 56) != epoch) {
+            return -1;
+        }
+        long offset = tick - ((plan >>> TICK_SHIFT) & TICK_MASK);
+        long depth = (plan >>> DEPTH_SHIFT) & DEPTH_MASK;
+        if (offset < 0 || offset / STEP_TICKS >= depth) {
+            return -1;
+        }
+        return (plan & (1L << (offset / STEP_TICKS))) != 0 ? 1 : 0;
+    }
+
+    // Used until the planner has caught up: glide whenever falling below the next gap
+    private static boolean fallback(GameWorld world) {
+        Squirrel squirrel = world.getSquirrel();
+        ArrayList<TreeObstacle> obstacles = world.getObstacles();
+        int target = GameWorld.HEIGHT / 2;
+        int nearest = Integer.MAX_VALUE;
+        for (int i = 0; i < obstacles.size(); i++) {
+            TreeObstacle obstacle = obstacles.get(i);
+            if (obstacle.getX() + obstacle.getWidth() >= squirrel.getX() && obstacle.getX() < nearest) {
+                nearest = obstacle.getX();
+                target = obstacle.getHeight() + obstacle.getGap() / 2;
+            }
+        }
+        return squirrel.getVelocity() > 0 && squirrel.getY() + squirrel.getHeight() / 2 > target;
+    }
+
+    /** Search throughput of the most recent plans. */
+    public double getNodesPerMillisecond() {
+        return nodesPerMillisecond;
+    }
+
+    private void planLoop() {
+        Thread self = Thread.currentThread();
+        while (worker == self) {
+            if (snapshots.update()) {
+                plan(snapshots.front());
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void plan(Snapshot s) {
+        long start = System.nanoTime();
+        long deadline = start + DEADLINE_NANOS;
+        long nodes = 0;
+
+        // Decisions fall on multiples of STEP_TICKS so that successive plans line up
+        int firstDecision = (s.ticks + STEP_TICKS - 1) / STEP_TICKS * STEP_TICKS;
+        int y = s.squirrelY;
+        double velocity = s.velocity;
+        for (int tick = s.ticks; tick < firstDecision; tick++) {
+            if (!step(s, tick, y, velocity, false)) {
+                return;
+            }
+            y = stepY;
+            velocity = stepVelocity;
+        }
+
+        beamY[0] = y;
+        beamVelocity[0] = velocity;
+        beamSize = 1;
+        // The node that follows the previous plan is always kept, so a plan that still
+        // works is carried over even when the deadline cuts the search short
+        int guided = 0;
+        int depth = 0;
+        for (; depth < MAX_DECISIONS; depth++) {
+            if (depth > 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            int tick = firstDecision + depth * STEP_TICKS;
+            int guidedDecision = previousDecision(s, tick);
+            if (guidedDecision < 0) {
+                guided = -1;  // past what the previous plan searched: nothing left to carry over
+            }
+            boolean guidedGlide = guidedDecision == 1;
+            int count = 0;
+            int guidedChild = -1;
+            for (int i = 0; i < beamSize; i++) {
+                for (int action = 0; action < 2; action++) {
+                    boolean glide = action == 1;
+                    nodes++;
+                    if (!advance(s, tick, beamY[i], beamVelocity[i], glide)) {
+                        continue;
+                    }
+                    if (i == guided && glide == guidedGlide) {
+                        guidedChild = count;
+                    }
+                    candidateY[count] = stepY;
+                    candidateVelocity[count] = stepVelocity;
+                    candidateParent[count] = i;
+                    candidateGlide[count] = glide;
+                    candidateScore[count] = score(s, tick + STEP_TICKS, stepY);
+                    count++;
+                }
+            }
+            if (count == 0) {
+                break;
+            }
+            guided = select(count, guidedChild, depth);
+        }
+
+        if (depth > 0) {
+            // The beam is sorted best first; walk back from its head to recover the decisions
+            long bits = 0;
+            int node = 0;
+            for (int d = depth - 1; d >= 0; d--) {
+                if (glides[d][node]) {
+                    bits |= 1L << d;
+                }
+                node = parents[d][node];
+            }
+            long next = ((long) s.epoch << 56) | ((long) firstDecision << TICK_SHIFT)
+                    | ((long) depth << DEPTH_SHIFT) | bits;
+            previousPlan = next;
+            plan = next;
+        }
+
+        double millis = Math.max(1e-3, (System.nanoTime() - start) / 1e6);
+        nodesPerMillisecond = nodesPerMillisecond * 0.9 + (nodes / millis) * 0.1;
+    }
+
+    private int previousDecision(Snapshot s, int tick) {
+        return decision(previousPlan, s.epoch, tick);
+    }
+
+    // Keeps the best BEAM_WIDTH candidates, plus the guided one, as the next beam.
+    // Returns the guided node's index in the new beam, or -1 if it died.
+    private int select(int count, int guidedChild, int depth) {
+        for (int i = 0; i < count; i++) {
+            int candidate = i;
+            int j = i;
+            while (j > 0 && candidateScore[order[j - 1]] < candidateScore[candidate]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = candidate;
+        }
+
+        int kept = Math.min(count, BEAM_WIDTH);
+        int guided = -1;
+        for (int k = 0; k < kept; k++) {
+            if (order[k] == guidedChild) {
+                guided = k;
+            }
+        }
+        if (guidedChild >= 0 && guided < 0) {
+            guided = kept - 1;
+            order[guided] = guidedChild;
+        }
+
+        for (int k = 0; k < kept; k++) {
+            int candidate = order[k];
+            beamY[k] = candidateY[candidate];
+            beamVelocity[k] = candidateVelocity[candidate];
+            parents[depth][k] = candidateParent[candidate];
+            glides[depth][k] = candidateGlide[candidate];
+        }
+        beamSize = kept;
+        return guided;
+    }
+
+    // Plays out one decision: an optional glide followed by STEP_TICKS ticks
+    private boolean advance(Snapshot s, int tick, int y, double velocity, boolean glide) {
+        for (int i = 0; i < STEP_TICKS; i++) {
+            if (!step(s, tick + i, y, velocity, glide && i == 0)) {
+                return false;
+            }
+            y = stepY;
+            velocity = stepVelocity;
+        }
+        return true;
+    }
+
+    // One tick of GameWorld.tick starting at the given tick count. Leaves the squirrel in
+    // stepY and stepVelocity, and returns false if it crashed.
+    private boolean step(Snapshot s, int tick, int y, double velocity, boolean glide) {
+        if (glide) {
+            velocity = Squirrel.GLIDE_FORCE;
+        }
+        velocity += Squirrel.GRAVITY;
+        y += velocity;
+        stepY = y;
+        stepVelocity = velocity;
+
+        int moves = tick + 1 - s.ticks;
+        for (int i = 0; i < s.obstacleCount; i++) {
+            int x = s.obstacleX[i] - TreeObstacle.SPEED * moves;
+            if (x + s.obstacleWidth[i] < 0) {
+                continue;  // recycled by now, at a height we cannot know
+            }
+            int bottomStart = s.obstacleHeight[i] + s.obstacleGap[i];
+            if (TreeObstacle.intersects(s.squirrelX, y, s.squirrelWidth, s.squirrelHeight,
+                    x, 0, s.obstacleWidth[i], s.obstacleHeight[i])
+                    || TreeObstacle.intersects(s.squirrelX, y, s.squirrelWidth, s.squirrelHeight,
+                    x, bottomStart, s.obstacleWidth[i], GameWorld.HEIGHT - bottomStart)) {
+                return false;
+            }
+        }
+        return y > 0 && y < s.groundY;
+    }
+
+    // Higher is better: how close the squirrel is to the middle of the next gap
+    private static double score(Snapshot s, int tick, int y) {
+        int moves = tick - s.ticks;
+        int target = s.groundY / 2;
+        int nearest = Integer.MAX_VALUE;
+        for (int i = 0; i < s.obstacleCount; i++) {
+            int x = s.obstacleX[i] - TreeObstacle.SPEED * moves;
+            if (x + s.obstacleWidth[i] >= s.squirrelX && x < nearest) {
+                nearest = x;
+                target = s.obstacleHeight[i] + s.obstacleGap[i] / 2;
+            }
+        }
+        return -Math.abs(y + s.squirrelHeight / 2 - target);
+    }
+
+    /** Lets the autopilot play at the game's real tick rate and reports each run. */
+    public static void soak(long seconds, PrintStream out) {
+        GameWorld world = new GameWorld();
+        Autopilot pilot = new Autopilot();
+        int groundY = GameWorld.HEIGHT - 100;
+        pilot.start();
+        pilot.observe(world, groundY);
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long next = System.nanoTime();
+        int runs = 0;
+        long totalScore = 0;
+        int bestScore = 0;
+        while (System.nanoTime() < end) {
+            next += 16_000_000L;
+            long wait;
+            while ((wait = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            if (pilot.shouldGlide(world)) {
+                world.glide();
+            }
+            if ((world.tick(groundY) & GameWorld.CRASHED) != 0) {
+                runs++;
+                totalScore += world.getScore();
+                bestScore = Math.max(bestScore, world.getScore());
+                out.printf("run %d: score %d after %d ticks, %.0f nodes/ms%n",
+                        runs, world.getScore(), world.getTicks(), pilot.getNodesPerMillisecond());
+                world.reset();
+            }
+            pilot.observe(world, groundY);
+        }
+        pilot.stop();
+
+        out.printf("%d finished runs in %d s, mean score %.1f, best %d; current run at score %d; %.0f nodes/ms%n",
+                runs, seconds, runs > 0 ? (double) totalScore / runs : 0.0, bestScore,
+                world.getScore(), pilot.getNodesPerMillisecond());
+    }
+}
+
+class Replay {
+    private static final int MAGIC = 0x46535250;  // "FSRP"
+    private static final int VERSION = 1;
+
+    private final long seed;
+    private int groundY;
+    private int ticks;
+    private int[] glideTicks = new int[64];
+    private int glideCount;
+
+    public Replay(long seed) {
+        this.seed = seed;
+    }
+
+    /** Records that the player glided after the given number of ticks. */
+    public void recordGlide(int tick) {
+        if (glideCount == glideTicks.length) {
+            glideTicks = Arrays.copyOf(glideTicks, glideCount * 2);
+        }
+        glideTicks[glideCount++] = tick;
+    }
+
+    public void finish(int ticks, int groundY) {
+        this.ticks = ticks;
+        this.groundY = groundY;
+    }
+
+    public static File getLastRunFile() {
+        return new File(new File(System.getProperty("user.home"), ".floatysquirrel"), "last-run.replay");
+    }
+
+    public void save(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(groundY);
+            out.writeInt(ticks);
+            out.writeInt(glideCount);
+            for (int i = 0; i < glideCount; i++) {
+                out.writeInt(glideTicks[i]);
+            }
+        }
+    }
+
+    public static Replay load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a Floaty Squirrel replay: " + file);
+            }
+            Replay replay = new Replay(in.readLong());
+            int groundY = in.readInt();
+            int ticks = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                replay.recordGlide(in.readInt());
+            }
+            replay.finish(ticks, groundY);
+            return replay;
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getGroundY() {
+        return groundY;
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public int getGlideCount() {
+        return glideCount;
+    }
+
+    public int getGlideTick(int index) {
+        return glideTicks[index];
+    }
+}
+
+/**
+ * Append-only binary log of gameplay events, one file per session. The simulation thread
+ * writes fixed-size records into a batch buffer, and full batches go to a writer thread,
+ * so logging never stalls a frame. If the writer falls behind, events are dropped and
+ * the count is logged rather than waited for. A shutdown hook drains whatever is
+ * pending if the game exits before close().
+ */
+class TelemetryLog {
+    static final int RECORD_BYTES = 24;
+    static final int MAGIC = 0x46535445;  // "FSTE"
+    static final int VERSION = 1;
+
+    // Record types
+    static final byte HEADER = 0;
+    static final byte RUN = 1;
+    static final byte GLIDE = 2;
+    static final byte SCORE = 3;
+    static final byte DEATH = 4;
+    static final byte DROPPED = 5;  // events lost since the previous one, as two ints
+
+    private static final int BATCH_RECORDS = 2048;
+    private static final int BATCHES = 8;
+
+    private final File file;
+    private final ConcurrentLinkedQueue<ByteBuffer> full = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final Thread shutdownHook = new Thread(this::closeOnExit, "telemetry-shutdown");
+    private ByteBuffer batch;       // guarded by this; only the shutdown hook ever contends
+    private long dropped;           // guarded by this
+    private long reported;          // how many of those are already in the log
+    private volatile boolean closed;
+
+    public TelemetryLog(File file) {
+        this.file = file;
+        for (int i = 0; i < BATCHES; i++) {
+            free.add(ByteBuffer.allocateDirect(BATCH_RECORDS * RECORD_BYTES));
+        }
+        record(HEADER, 0, MAGIC, VERSION, 0, 0, 0);
+
+        writer = new Thread(this::write, "telemetry");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public static File getDirectory() {
+        return new File(new File(System.getProperty("user.home"), ".floatysquirrel"), "telemetry");
+    }
+
+    public static File newSessionFile() {
+        return new File(getDirectory(), "session-" + System.currentTimeMillis() + ".bin");
+    }
+
+    public void runStarted(long seed) {
+        record(RUN, 0, 0, 0, 0, (int) (seed >>> 32), (int) seed);
+    }
+
+    public void glided(int tick, int y, int score) {
+        record(GLIDE, 0, tick, y, score, 0, 0);
+    }
+
+    public void scored(int tick, int y, int score) {
+        record(SCORE, 0, tick, y, score, 0, 0);
+    }
+
+    /** Logs how the run ended and hands everything so far to the writer. */
+    public void died(int tick, int y, int score, int cause, int treeHeight, int treeGap) {
+        record(DEATH, cause, tick, y, score, treeHeight, treeGap);
+        flush();
+    }
+
+    // type, cause, 2 bytes padding, then five ints
+    private synchronized void record(byte type, int cause, int tick, int y, int score, int a, int b) {
+        if (closed) {
+            return;
+        }
+        if (batch == null && (batch = free.poll()) == null) {
+            dropped++;
+            return;
+        }
+        if (batch.remaining() >= 2 * RECORD_BYTES) {
+            recordDropped();  // leaves room for this event
+        }
+        put(type, cause, tick, y, score, a, b);
+        if (!batch.hasRemaining()) {
+            flush();
+        }
+    }
+
+    // Notes events lost since the last note, so the analyzer can tell the data is incomplete
+    private void recordDropped() {
+        long lost = dropped - reported;
+        if (lost > 0 && batch != null && batch.hasRemaining()) {
+            put(DROPPED, 0, 0, 0, 0, (int) (lost >>> 32), (int) lost);
+            reported = dropped;
+        }
+    }
+
+    private void put(byte type, int cause, int tick, int y, int score, int a, int b) {
+        batch.put(type).put((byte) cause).putShort((short) 0)
+                .putInt(tick).putInt(y).putInt(score).putInt(a).putInt(b);
+    }
+
+    /** Hands the current batch to the writer thread. */
+    public synchronized void flush() {
+        if (closed || batch == null || batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        full.add(batch);
+        batch = free.poll();
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Hands over what is left and lets the writer drain it, close the file and exit.
+     * Later events are ignored. Does not wait for the writer.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        if (batch == null) {
+            batch = free.poll();
+        }
+        recordDropped();
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down; the hook is what called us
+        }
+    }
+
+    // Keeps the end of a run that was aborted by closing the window or System.exit
+    private void closeOnExit() {
+        close();
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (true) {
+                    boolean done = closed;  // read before polling, so the final batch is never missed
+                    ByteBuffer next = full.poll();
+                    if (next == null) {
+                        if (done) {
+                            return;
+                        }
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    while (next.hasRemaining()) {
+                        channel.write(next);
+                    }
+                    next.clear();
+                    free.add(next);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
+
+class AllocationBudget {
+    private static final String[] PHASES = {"tick", "background", "obstacles", "squirrel", "hud"};
+    // Bytes per frame, overridable with -Dfloatysquirrel.budget.<phase>=<bytes>
+    private static final long[] DEFAULT_BUDGETS = {16, 256, 64, 1024, 512};
+    private static final int WARMUP_FRAMES = 1000;
+    private static final int GROUND_LEVEL = GameWorld.HEIGHT - 100;
+
+    private final int frames;
+    private final long[] totals = new long[PHASES.length];
+    private final long[] worst = new long[PHASES.length];
+    private com.sun.management.ThreadMXBean threads;
+    private long threadId;
+    private long overhead;
+    private long mark;
+    private boolean measuring;
+
+    public AllocationBudget(int frames) {
+        this.frames = frames;
+    }
+
+    public boolean run(PrintStream out) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            out.println("Per-thread allocation counters are not supported by this JVM");
+            return false;
+        }
+        threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        threadId = Thread.currentThread().getId();
+
+        BufferedImage image = new BufferedImage(GameWorld.WIDTH, GameWorld.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        GameWorld world = new GameWorld(42);
+        Background background = new Background(42);
+        TripleBuffer<RenderFrame> renderFrames =
+                new TripleBuffer<>(new RenderFrame(), new RenderFrame(), new RenderFrame());
+        FrameRenderer renderer = new FrameRenderer();
+
+        for (int frame = -WARMUP_FRAMES; frame < frames; frame++) {
+            if (frame == 0) {
+                overhead = measureOverhead();
+                measuring = true;
+            }
+            // Swing hands paintComponent a fresh Graphics every frame, so start from its defaults
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_DEFAULT);
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT);
+            mark = threads.getThreadAllocatedBytes(threadId);
+
+            // Same work as a GamePanel simulation tick, with a simple pilot holding the middle
+            if (world.getSquirrel().getY() > GameWorld.HEIGHT / 2) {
+                world.glide();
+            }
+            if ((world.tick(GROUND_LEVEL) & GameWorld.CRASHED) != 0) {
+                world.reset();
+            }
+            background.update();
+            renderFrames.back().copyFrom(world, background, true);
+            renderFrames.publish();
+            record(0);
+
+            // Same work as GamePanel.paintComponent
+            renderFrames.update();
+            RenderFrame renderFrame = renderFrames.front();
+            renderFrame.background.draw(g2d);
+            record(1);
+            renderer.drawObstacles(g2d, renderFrame);
+            record(2);
+            renderer.drawSquirrel(g2d, renderFrame);
+            record(3);
+            renderer.drawScore(g2d, renderFrame);
+            record(4);
+        }
+        g2d.dispose();
+
+        return report(out);
+    }
+
+    // The counter query itself allocates on some JVMs, so subtract its cost
+    private long measureOverhead() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            long before = threads.getThreadAllocatedBytes(threadId);
+            long after = threads.getThreadAllocatedBytes(threadId);
+            min = Math.min(min, after - before);
+        }
+        return min;
+    }
+
+    private void record(int phase) {
+        long now = threads.getThreadAllocatedBytes(threadId);
+        if (measuring) {
+            long bytes = Math.max(0, now - mark - overhead);
+            totals[phase] += bytes;
+            worst[phase] = Math.max(worst[phase], bytes);
+        }
+        mark = threads.getThreadAllocatedBytes(threadId);
+    }
+
+    private static long budgetFor(int phase) {
+        return Long.getLong("floatysquirrel.budget." + PHASES[phase], DEFAULT_BUDGETS[phase]);
+    }
+
+    private boolean report(PrintStream out) {
+        out.printf("Allocation per frame over %d frames (after %d warm-up frames)%n", frames, WARMUP_FRAMES);
+        out.printf("%-12s %14s %12s %10s  %s%n", "phase", "mean B/frame", "max B/frame", "budget", "status");
+
+        StringBuilder regressed = new StringBuilder();
+        for (int i = 0; i < PHASES.length; i++) {
+            double mean = frames > 0 ? (double) totals[i] / frames : 0;
+            long budget = budgetFor(i);
+            boolean over = mean > budget;
+            if (over) {
+                regressed.append(regressed.length() > 0 ? ", " : "").append(PHASES[i]);
+            }
+            out.printf("%-12s %14.1f %12d %10d  %s%n", PHASES[i], mean, worst[i], budget, over ? "OVER BUDGET" : "ok");
+        }
+
+        if (regressed.length() > 0) {
+            out.println("Allocation budget exceeded in: " + regressed);
+            return false;
+        }
+        out.println("All phases within budget");
+        return true;
+    }
+}
+
+class ReplayExporter {
+    private static final int WIDTH = GameWorld.WIDTH;
+    private static final int HEIGHT = GameWorld.HEIGHT;
+    private static final int FRAME_BYTES = WIDTH * HEIGHT * 3;
+    private static final double GAME_FPS = 1000.0 / 16;  // GamePanel's timer period
+
+    private final Replay replay;
+    private final File output;
+    private final int threads;
+    private final boolean raw;
+
+    /**
+     * Exports to a raw RGB24 stream when the output name ends in .rgb, otherwise to a
+     * directory of numbered PNG frames.
+     */
+    public ReplayExporter(Replay replay, File output, int threads) {
+        this.replay = replay;
+        this.output = output;
+        this.threads = Math.max(1, threads);
+        this.raw = output.getName().endsWith(".rgb");
+    }
+
+    public void export(PrintStream out) throws IOException, InterruptedException {
+        int frames = replay.getTicks() + 1;
+        long start = System.nanoTime();
+
+        FileChannel channel = null;
+        if (raw) {
+            channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } else if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Could not create " + output);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // One contiguous range of frames per worker
+            int rangeSize = (frames + threads - 1) / threads;
+            List<Future<Void>> ranges = new ArrayList<>();
+            for (int first = 0; first < frames; first += rangeSize) {
+                final int from = first;
+                final int to = Math.min(frames, first + rangeSize);
+                final FileChannel target = channel;
+                ranges.add(pool.submit(() -> {
+                    renderRange(from, to, target);
+                    return null;
+                }));
+            }
+            for (Future<Void> range : ranges) {
+                try {
+                    range.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Frame export failed", cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        out.printf("Exported %d frames (%dx%d) to %s in %.2f s with %d threads: %.1f fps, %.1fx real time%n",
+                frames, WIDTH, HEIGHT, output, seconds, threads,
+                frames / seconds, frames / seconds / GAME_FPS);
+    }
+
+    private void renderRange(int first, int last, FileChannel channel) throws IOException {
+        // Each worker builds its own snapshot by fast-forwarding the simulation from the
+        // start of the run; stepping is far cheaper than drawing, so this costs nearly nothing
+        GameWorld world = new GameWorld();
+        world.reset(replay.getSeed());
+        Background background = new Background(replay.getSeed());
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ByteBuffer rgb = channel != null ? ByteBuffer.allocate(FRAME_BYTES) : null;
+        Graphics2D g2d = image.createGraphics();
+
+        int glide = 0;
+        try {
+            for (int frame = 0; frame < last; frame++) {
+                if (frame >= first) {
+                    // Same drawing as GamePanel.paintComponent, starting from default hints
+                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_DEFAULT);
+                    background.draw(g2d);
+                    world.drawObstacles(g2d);
+                    world.drawSquirrel(g2d);
+                    world.drawScore(g2d);
+
+                    if (channel != null) {
+                        writeRaw(channel, frame, pixels, rgb);
+                    } else {
+                        ImageIO.write(image, "png", new File(output, String.format("frame-%06d.png", frame)));
+                    }
+                }
+
+                background.update();
+                while (glide < replay.getGlideCount() && replay.getGlideTick(glide) <= frame) {
+                    world.glide();
+                    glide++;
+                }
+                world.tick(replay.getGroundY());
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private static void writeRaw(FileChannel channel, int frame, int[] pixels, ByteBuffer rgb) throws IOException {
+        rgb.clear();
+        for (int pixel : pixels) {
+            rgb.put((byte) (pixel >> 16));
+            rgb.put((byte) (pixel >> 8));
+            rgb.put((byte) pixel);
+        }
+        rgb.flip();
+
+        // Positional writes let every worker fill its own region of the file
+        long position = (long) frame * FRAME_BYTES;
+        while (rgb.hasRemaining()) {
+            position += channel.write(rgb, position);
+        }
+    }
+}
+
+class TelemetryAnalyzer {
+    // Heatmap columns: height of the tree the death happened at, i.e. where its gap starts
+    private static final int HEIGHT_BUCKET = 20;
+    private static final int HEIGHT_BUCKETS =
+            (GameWorld.MAX_TREE_HEIGHT - GameWorld.MIN_TREE_HEIGHT + HEIGHT_BUCKET - 1) / HEIGHT_BUCKET;
+    // Heatmap rows: squirrel y relative to the top of the gap, from the ceiling over the tallest
+    // tree down to the ground under the shortest. Anything beyond lands in the edge rows.
+    private static final int OFFSET_BUCKET = 25;
+    private static final int MIN_OFFSET = -GameWorld.MAX_TREE_HEIGHT;
+    private static final int MAX_OFFSET = GameWorld.HEIGHT - GameWorld.MIN_TREE_HEIGHT;
+    private static final int OFFSET_BUCKETS = (MAX_OFFSET - MIN_OFFSET + OFFSET_BUCKET - 1) / OFFSET_BUCKET;
+    private static final int MAX_SCORE = 1000;
+    // Mapped one slice at a time; a whole number of records so no record straddles two
+    private static final long CHUNK_BYTES = TelemetryLog.RECORD_BYTES * (1L << 22);
+    private static final String SHADES = " .:-=+*#%@";
+    private static final String[] CAUSES = {"unknown", "ceiling", "ground", "tree top", "tree bottom"};
+
+    /** Totals for part of the logs; parts are merged after the parallel scan. */
+    private static final class Stats {
+        long records;
+        long runs;
+        long glides;
+        long points;
+        long dropped;
+        final long[] causes = new long[CAUSES.length];
+        final long[][] deaths = new long[OFFSET_BUCKETS][HEIGHT_BUCKETS];
+        final long[] scores = new long[MAX_SCORE + 1];
+
+        Stats merge(Stats other) {
+            records += other.records;
+            runs += other.runs;
+            glides += other.glides;
+            points += other.points;
+            dropped += other.dropped;
+            for (int i = 0; i < causes.length; i++) {
+                causes[i] += other.causes[i];
+            }
+            for (int row = 0; row < OFFSET_BUCKETS; row++) {
+                for (int column = 0; column < HEIGHT_BUCKETS; column++) {
+                    deaths[row][column] += other.deaths[row][column];
+                }
+            }
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += other.scores[i];
+            }
+            return this;
+        }
+    }
+
+    private static final class Chunk {
+        final File file;
+        final long offset;
+        final long length;
+
+        Chunk(File file, long offset, long length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public static void analyze(List<File> inputs, PrintStream out) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long bytes = 0;
+        for (File file : logFiles(inputs)) {
+            // A partly written last record is ignored
+            long size = file.length() / TelemetryLog.RECORD_BYTES * TelemetryLog.RECORD_BYTES;
+            if (!hasHeader(file, size)) {
+                out.println("Skipping " + file + ": not a telemetry log");
+                continue;
+            }
+            for (long offset = 0; offset < size; offset += CHUNK_BYTES) {
+                chunks.add(new Chunk(file, offset, Math.min(CHUNK_BYTES, size - offset)));
+            }
+            bytes += size;
+        }
+        if (chunks.isEmpty()) {
+            out.println("No telemetry found");
+            return;
+        }
+
+        long start = System.nanoTime();
+        Stats stats;
+        try {
+            stats = chunks.parallelStream()
+                    .map(TelemetryAnalyzer::scan)
+                    .reduce(Stats::merge)
+                    .get();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        out.printf("Scanned %d records (%.1f MB) in %.2f s, %.0f MB/s%n",
+                stats.records, bytes / 1e6, seconds, bytes / 1e6 / Math.max(seconds, 1e-9));
+        report(stats, out);
+    }
+
+    private static List<File> logFiles(List<File> inputs) {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            File[] children = input.listFiles((dir, name) -> name.endsWith(".bin"));
+            if (children != null) {
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            } else if (input.isFile()) {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    private static boolean hasHeader(File file, long size) throws IOException {
+        if (size < TelemetryLog.RECORD_BYTES) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(TelemetryLog.RECORD_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            return header.get(0) == TelemetryLog.HEADER && header.getInt(4) == TelemetryLog.MAGIC
+                    && header.getInt(8) == TelemetryLog.VERSION;
+        }
+    }
+
+    private static Stats scan(Chunk chunk) {
+        Stats stats = new Stats();
+        try (FileChannel channel = FileChannel.open(chunk.file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length);
+            for (int at = 0; at < chunk.length; at += TelemetryLog.RECORD_BYTES) {
+                stats.records++;
+                byte type = buffer.get(at);
+                if (type == TelemetryLog.RUN) {
+                    stats.runs++;
+                } else if (type == TelemetryLog.GLIDE) {
+                    stats.glides++;
+                } else if (type == TelemetryLog.SCORE) {
+                    stats.points++;
+                } else if (type == TelemetryLog.DROPPED) {
+                    stats.dropped += ((long) buffer.getInt(at + 16) << 32) | (buffer.getInt(at + 20) & 0xFFFFFFFFL);
+                } else if (type == TelemetryLog.DEATH) {
+                    int cause = buffer.get(at + 1);
+                    int y = buffer.getInt(at + 8);
+                    int score = buffer.getInt(at + 12);
+                    int treeHeight = buffer.getInt(at + 16);
+                    stats.causes[cause > 0 && cause < CAUSES.length ? cause : 0]++;
+                    stats.scores[Math.min(Math.max(score, 0), MAX_SCORE)]++;
+                    if (treeHeight >= 0) {
+                        int column = clamp((treeHeight - GameWorld.MIN_TREE_HEIGHT) / HEIGHT_BUCKET, HEIGHT_BUCKETS);
+                        int row = clamp(Math.floorDiv(y - treeHeight - MIN_OFFSET, OFFSET_BUCKET), OFFSET_BUCKETS);
+                        stats.deaths[row][column]++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return stats;
+    }
+
+    private static int clamp(int bucket, int buckets) {
+        return Math.max(0, Math.min(buckets - 1, bucket));
+    }
+
+    private static void report(Stats stats, PrintStream out) {
+        long deaths = 0;
+        long totalScore = 0;
+        int best = 0;
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            deaths += stats.scores[score];
+            totalScore += (long) score * stats.scores[score];
+            if (stats.scores[score] > 0) {
+                best = score;
+            }
+        }
+        out.printf("%d runs, %d deaths, %d glides, %d points%n", stats.runs, deaths, stats.glides, stats.points);
+        if (stats.dropped > 0) {
+            out.printf("Warning: %d events were dropped while logging; the figures below are incomplete%n",
+                    stats.dropped);
+        }
+        if (deaths == 0) {
+            return;
+        }
+        out.printf("Score: mean %.1f, median %d, 90th percentile %d, best %d%n",
+                (double) totalScore / deaths, percentile(stats, deaths, 0.5), percentile(stats, deaths, 0.9), best);
+
+        out.println();
+        out.println("Causes of death:");
+        for (int cause = 1; cause < CAUSES.length; cause++) {
+            out.printf("  %-12s %8d  %5.1f%%%n", CAUSES[cause], stats.causes[cause], 100.0 * stats.causes[cause] / deaths);
+        }
+
+        out.println();
+        out.println("Deaths by tree height (columns) and squirrel y relative to the top of the gap (rows):");
+        long max = 1;
+        for (long[] row : stats.deaths) {
+            for (long count : row) {
+                max = Math.max(max, count);
+            }
+        }
+        StringBuilder line = new StringBuilder("           ");
+        for (int column = 0; column < HEIGHT_BUCKETS; column++) {
+            line.append(String.format("%4d", GameWorld.MIN_TREE_HEIGHT + column * HEIGHT_BUCKET));
+        }
+        out.println(line);
+        for (int row = 0; row < OFFSET_BUCKETS; row++) {
+            int offset = MIN_OFFSET + row * OFFSET_BUCKET;
+            boolean inGap = offset >= 0 && offset < GameWorld.GAP_HEIGHT;
+            line.setLength(0);
+            String label = row == 0 ? "<=" + offset
+                    : row == OFFSET_BUCKETS - 1 ? ">=" + offset : String.valueOf(offset);
+            line.append(String.format("%6s %s  ", label, inGap ? "gap" : "   "));
+            for (int column = 0; column < HEIGHT_BUCKETS; column++) {
+                long count = stats.deaths[row][column];
+                int shade = count == 0 ? 0 : 1 + (int) ((SHADES.length() - 2) * count / max);
+                char c = SHADES.charAt(shade);
+                line.append(c).append(c).append(c).append(' ');
+            }
+            out.println(line);
+        }
+        out.println("(darkest cell = " + max + " deaths)");
+
+        out.println();
+        out.println("Score distribution:");
+        int width = Math.max(1, (best + 20) / 20);
+        long largest = 1;
+        for (int from = 0; from <= best; from += width) {
+            largest = Math.max(largest, bucketCount(stats, from, width));
+        }
+        for (int from = 0; from <= best; from += width) {
+            long count = bucketCount(stats, from, width);
+            String label = width == 1 ? String.valueOf(from) : from + "-" + (from + width - 1);
+            out.printf("  %9s %8d %s%n", label, count, repeat('#', (int) (50 * count / largest)));
+        }
+    }
+
+    private static long bucketCount(Stats stats, int from, int width) {
+        long count = 0;
+        for (int score = from; score < from + width && score <= MAX_SCORE; score++) {
+            count += stats.scores[score];
+        }
+        return count;
+    }
+
+    private static int percentile(Stats stats, long deaths, double fraction) {
+        long seen = 0;
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            seen += stats.scores[score];
+            if (seen >= Math.ceil(deaths * fraction)) {
+                return score;
+            }
+        }
+        return MAX_SCORE;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}